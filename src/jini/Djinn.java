@@ -1,22 +1,29 @@
 package jini;
 
+import java.io.IOException;
 import java.rmi.RemoteException;
-import java.util.Deque;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import javafx.animation.PauseTransition;
 import javafx.application.Application;
-import javafx.application.Platform;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
+import javafx.event.ActionEvent;
+import javafx.event.EventHandler;
 import javafx.geometry.Insets;
 import javafx.scene.Node;
 import javafx.scene.Scene;
@@ -28,35 +35,42 @@ import javafx.scene.control.TreeView;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 import net.jini.core.discovery.LookupLocator;
-import net.jini.core.entry.Entry;
 import net.jini.core.lookup.ServiceID;
 import net.jini.core.lookup.ServiceItem;
 import net.jini.core.lookup.ServiceMatches;
 import net.jini.core.lookup.ServiceRegistrar;
 import net.jini.core.lookup.ServiceTemplate;
+import net.jini.discovery.DiscoveryChangeListener;
 import net.jini.discovery.DiscoveryEvent;
 import net.jini.discovery.DiscoveryListener;
 import net.jini.discovery.LookupDiscovery;
-import net.jini.lookup.entry.ServiceInfo;
 
 /**
- * Djinn comprises two loops: a scheduled loop to sense djinn activity,
- * set to run every FREQUENCY seconds; and the JavaFX event loop accessed via the
+ * Djinn comprises two loops: a scheduled loop to sense djinn activity, run by each
+ * discovery scope, by default every FREQUENCY seconds; and the JavaFX event loop accessed via the
  * <code>Platform.runLater(..)</code> method, which animates the screen controls. Events that
- * are detected by the scheduled loop, whose body resides in the <code>Djinn#run()</code>
+ * are detected by the scheduled loop, whose body resides in the <code>Djinn$Scope#run()</code>
  * method, are wrapped in Command objects, and queued onto the JavaFX event loop
- * to be run later, to affect screen control changes.
+ * to be run later, to affect screen control changes. Commands pass through a
+ * <code>Throttle</code>, which bounds the work outstanding on the JavaFX event loop, and
+ * selection changes are debounced, so that only the latest selection is rendered.
  * 
  * @author pickup
  */
-public class Djinn extends Application implements ChangeListener, DiscoveryListener, Runnable {
+public class Djinn extends Application implements ChangeListener {
 
     // constant(s)
+    private static final long DEBOUNCE = 120L;                                  // Selection quiet period, in milliseconds.
     private static final long FREQUENCY = 16L;                                  // Throttle polling here.
     private static final long HIATUS = 2L;                                      // Initial pause before polling start.
+    private static final int LOOKUPS = 4;                                       // Concurrent first lookups.
 
     public static final String ALL_GROUPS = "ALL GROUPS";                       // Literal used instead of "".
+    private static final String ALL = "all";                                    // Default scope name.
+    private static final String LOOKUP = "lookup";                              // Thread name.
+    private static final String SCOPES = "djinn.scopes";                        // System property.
     private static final String SERVICES = "Services";
     private static final String SCHEDULED = "scheduled";                        // Thread name.
     private static final String TITLE = "Djinn";
@@ -64,11 +78,16 @@ public class Djinn extends Application implements ChangeListener, DiscoveryListe
     // type(s)
     private Accordion accordion;
     private BorderPane pane;
-    private Deque<Event> deque = new ConcurrentLinkedDeque<>();                 // Competition between DiscoveryListener & 'scheduled'.
-    private LookupDiscovery discovery;
-    private Map<ServiceID, ServiceRegistrar> registrars = new HashMap<>();
-    private Map<ServiceID, Map<ServiceID, ServiceItem>> services = new HashMap<>();
+    private Export export;
+    private History history = new History();
+    private ExecutorService lookups;
     private ScheduledExecutorService scheduled;
+    private Map<String, Scope> scopes = new ConcurrentHashMap<>();
+    private Selection selection;
+    private Map<String, Long> groups = new HashMap<>();                         // Time each group was last seen.
+    private Map<ServiceID, Map<ServiceID, ServiceItem>> shown = new HashMap<>(); // Services in view, by registrar.
+    private Throttle throttle = new Throttle();
+    private Map<ServiceID, Set<Scope>> trackers = new HashMap<>();              // Scopes tracking each registrar in view.
     private TreeView tree;
 
     public Djinn() {
@@ -88,10 +107,21 @@ public class Djinn extends Application implements ChangeListener, DiscoveryListe
             }
         });
 
-        discovery = new LookupDiscovery(LookupDiscovery.NO_GROUPS);
+        lookups = Executors.newFixedThreadPool(LOOKUPS, new ThreadFactory() {
 
-        discovery.addDiscoveryListener((DiscoveryListener) this);
-        discovery.setGroups(LookupDiscovery.ALL_GROUPS);
+            // ThreadFactory
+            @Override
+            public Thread newThread(Runnable runnable) {
+
+                Thread thread = new Thread(runnable, LOOKUP);
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+
+        export = new Export(this, history, scheduled);
+        export.open();
     }
 
     // Application
@@ -99,6 +129,7 @@ public class Djinn extends Application implements ChangeListener, DiscoveryListe
     public void start(Stage stage) throws Exception {
 
         pane = new BorderPane();
+        selection = new Selection();
 
         TreeItem root = new TreeItem(SERVICES);
         root.setExpanded(true);
@@ -118,25 +149,111 @@ public class Djinn extends Application implements ChangeListener, DiscoveryListe
 
         stage.show();
 
-        scheduled.schedule((Runnable) this, HIATUS, TimeUnit.SECONDS);
+        /*
+         * The -Ddjinn.scopes=name=group,group@seconds;... switch configures the
+         * discovery scopes at startup, where a "*" group denotes all groups. By
+         * default, a single scope discovers all groups, every FREQUENCY seconds.
+         */
+        String property = System.getProperty(SCOPES);
+
+        if (property == null) {
+            addScope(ALL, LookupDiscovery.ALL_GROUPS, FREQUENCY);
+            return;
+        }
+
+        for (String scope : property.split(";")) {
+
+            String[] parts = scope.split("[=@]");
+            if (parts.length != 3)
+                throw new IllegalArgumentException(SCOPES + ": " + scope);
+
+            addScope(parts[0].trim(), toGroups(parts[1]), Long.parseLong(parts[2].trim()));
+        }
     }
 
     // Application
     @Override
     public void stop() throws Exception {
 
-        discovery.terminate();                                                  // This leaves parked threads.
+        for (Scope scope : scopes.values())
+            scope.discovery.terminate();                                        // This leaves parked threads.
+
+        export.close();
         scheduled.shutdownNow();                                                // Lose queued tasks.
+        lookups.shutdownNow();
 
         System.exit(0);                                                         // Inelegant. See terminate comment.
     }
 
+    /**
+     * Adds a discovery scope, which discovers the registrars of the given groups,
+     * or of all groups given <code>LookupDiscovery.ALL_GROUPS</code>, and polls them every
+     * <code>frequency</code> seconds. A scope of the same name is replaced. Besides
+     * the -Ddjinn.scopes switch, export clients may add scopes with a "scope add"
+     * line, given the -Ddjinn.export.control=true switch. The returned future fails
+     * should the scope's discovery not start.
+     */
+    public Future<?> addScope(final String name, String[] groups, long frequency) {
+
+        if (frequency <= 0L)
+            throw new IllegalArgumentException("frequency: " + frequency);
+
+        final Scope scope = new Scope(name, groups, frequency);
+
+        return scheduled.submit(new Callable<Void>() {
+
+            // Callable
+            @Override
+            public Void call() throws IOException {
+
+                Scope last = scopes.remove(name);
+                if (last != null)
+                    last.close();
+
+                try {
+                    scope.open();
+                    scopes.put(name, scope);
+
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    throw e;
+                }
+
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Removes the named discovery scope, discarding from view those of its
+     * registrars that no other scope tracks. Export clients may remove scopes with
+     * a "scope remove" line, given the -Ddjinn.export.control=true switch. The
+     * returned future yields false should there be no such scope.
+     */
+    public Future<Boolean> removeScope(final String name) {
+
+        return scheduled.submit(new Callable<Boolean>() {
+
+            // Callable
+            @Override
+            public Boolean call() {
+
+                Scope scope = scopes.remove(name);
+                if (scope == null)
+                    return false;
+
+                scope.close();
+                return true;
+            }
+        });
+    }
+
     // ChangeListener
     @Override
     public void changed(ObservableValue observable, Object last, Object next) {
 
         if (next == null) {
-            Platform.runLater((Runnable) new Changed());
+            selection.select(null);
             return;
         }
 
@@ -146,7 +263,7 @@ public class Djinn extends Application implements ChangeListener, DiscoveryListe
         TreeItem item = (TreeItem) next;
 
         if (item.getParent() == null) {
-            Platform.runLater((Runnable) new Changed());
+            selection.select(null);
             return;
         }
 
@@ -157,137 +274,176 @@ public class Djinn extends Application implements ChangeListener, DiscoveryListe
         Wrapper wrapper = (Wrapper) value;
         Object object = wrapper.object;
 
-        Platform.runLater((Runnable) new Changed(object));
+        selection.select(object);
     }
 
-    // DiscoveryListener
-    @Override
-    public void discarded(DiscoveryEvent event) {
-        System.out.println("discarded");
-    }
+    /*
+     * Shows a registrar, on its first sighting by any scope. Run on the scheduled
+     * thread only, as are Djinn#update(..) and Djinn#hide(..), which together keep
+     * the tree and the export free of the duplicates that overlapping scopes see.
+     */
+    private void show(Scope scope, ServiceRegistrar registrar, LookupLocator locator, String[] groups) {
 
-    // DiscoveryListener
-    @Override
-    public void discovered(DiscoveryEvent event) {
+        ServiceID id = registrar.getServiceID();
+
+        if (!trackers.containsKey(id)) {
 
-        for (ServiceRegistrar registrar : event.getRegistrars())
-            deque.add(new Event(Event.DISCOVERED, registrar));
+            trackers.put(id, new HashSet<Scope>());
+            shown.put(id, new HashMap<ServiceID, ServiceItem>());
 
-        System.out.println("discovered");
+            throttle.runLater((Runnable) new Discovered(registrar, locator, groups));
+            export.discovered(registrar, locator, groups);
+        }
+
+        trackers.get(id).add(scope);
     }
 
-    /**
-     * This is the heart of the event generator, that is run every FREQUENCY seconds.
-     * It generates Discovered and Discarded events for registrar discovery and
-     * partition, and Added and Removed events for service discovery and their
-     * partition. <code>Djinn#run()</code> accepts <code>Djinn$Event</code> objects generated from
-     * <code>LookupDiscovery(..)</code> events, that are fed in via a concurrent deque. It then
-     * checks for any services associated with the new registrar via a call to
-     * <code>ServiceRegistrar#lookup(..)</code>, before executing the major part of the run()
-     * method.
+    /*
+     * Brings the services shown under a registrar up to date with the latest
+     * lookup of it, by whichever scope polled it last.
      */
-    // Runnable
-    @Override
-    public void run() {
+    private void update(ServiceRegistrar registrar, ServiceItem[] items) {
 
-        while (!deque.isEmpty())
-            try {
-                Event event = deque.remove();
+        Map<ServiceID, ServiceItem> map = shown.get(registrar.getServiceID());
+        if (map == null)
+            return;
 
-                ServiceRegistrar registrar = event.registrar;
-                ServiceID id = registrar.getServiceID();
+        boolean collapse = false;
 
-                if (registrars.containsKey(id))
-                    continue;
+        for (ServiceItem item : items) {
 
-                Platform.runLater((Runnable) new Discovered(registrar));
+            if (map.containsKey(item.serviceID))
+                continue;
 
-                registrars.put(id, registrar);
+            throttle.runLater((Runnable) new Added(registrar, item));
+            export.added(registrar, item);
+            map.put(item.serviceID, item);
+
+            collapse = true;
+        }
 
-                // RemoteException
-                ServiceMatches matches = registrar.lookup(new ServiceTemplate(null, null, null), Integer.MAX_VALUE);
-                for (ServiceItem item : matches.items) {
+        Iterator<ServiceItem> i = map.values().iterator();
 
-                    Platform.runLater((Runnable) new Added(registrar, item));
+        while (i.hasNext()) {
 
-                    if (!services.containsKey(id))
-                        services.put(id, new HashMap<ServiceID, ServiceItem>());
+            ServiceItem item = i.next();
 
-                    services.get(id).put(item.serviceID, item);
-                }
+            if (Util.inArrayById(items, item))
+                continue;
 
-            } catch (RemoteException e) {}
+            throttle.runLater((Runnable) new Removed(registrar, item));
+            export.removed(registrar, item);
+            i.remove();
+
+            collapse = true;
+        }
 
         /*
-         * The "major part". This polls each registrar. This is ugly but necessary
-         * in order to find out exactly where a service is registered, given that
-         * a single service can be registered with N registrars.
+         * Owing to the JavaFX bug that selects a random tree item when
+         * the tree is modified, lengthened or shortened, Djinn collapses
+         * the tree instead of showing random item data, in the central pane,
+         * out of sync with the item shown selected in the tree.
          */
-        boolean collapse = false;
+        //if (collapse)
+        //    throttle.runLater((Runnable) new Collapse());
+    }
 
-        Map<ServiceID, ServiceItem> map = null;
-        ServiceRegistrar registrar = null;
+    /*
+     * Hides a registrar, and its services, once no scope tracks it.
+     */
+    private void hide(Scope scope, ServiceRegistrar registrar) {
 
-        Iterator<ServiceRegistrar> iterator = registrars.values().iterator();
+        ServiceID id = registrar.getServiceID();
 
-        while (iterator.hasNext())
-            try {
-                registrar = iterator.next();
-                map = services.get(registrar.getServiceID());
+        Set<Scope> set = trackers.get(id);
+        if (set == null || !set.remove(scope) || !set.isEmpty())
+            return;
 
-                // RemoteException
-                ServiceMatches matches = registrar.lookup(new ServiceTemplate(null, null, null), Integer.MAX_VALUE);
+        trackers.remove(id);
 
-                for (ServiceItem item : matches.items) {
+        for (ServiceItem item : shown.remove(id).values()) {
+            throttle.runLater((Runnable) new Removed(registrar, item));
+            export.removed(registrar, item);
+        }
 
-                    if (Util.inCollectionById(map.values(), item))
-                        continue;
+        throttle.runLater((Runnable) new Discarded(registrar));
+        export.discarded(registrar);
 
-                    Platform.runLater((Runnable) new Added(registrar, item));
-                    map.put(item.serviceID, item);
+        history.retire(History.SERVICES + id);
+        history.retire(History.LATENCY + id);
+    }
 
-                    collapse = true;
-                }
+    /*
+     * Records the distinct services known to each group's registrars, as a service
+     * registered with several of them is counted once. Run on the scheduled thread
+     * only, at the end of each scope's sweep. A group whose registrars have all
+     * gone is recorded as empty, until its history would have lapsed anyway.
+     */
+    private void sample() {
 
-                Iterator<ServiceItem> i = map.values().iterator();
+        long time = System.currentTimeMillis();
 
-                while (i.hasNext()) {
+        Map<String, Set<ServiceID>> counts = new HashMap<>();                   // Distinct services, by group.
 
-                    ServiceItem item = i.next();
+        for (Map.Entry<ServiceID, Set<Scope>> entry : trackers.entrySet()) {
 
-                    if (Util.inArrayById(matches.items, item))
-                        continue;
+            Scope scope = entry.getValue().iterator().next();
+            Set<ServiceID> ids = shown.get(entry.getKey()).keySet();
 
-                    Platform.runLater((Runnable) new Removed(registrar, item));
-                    i.remove();
+            for (String group : scope.memberships.get(entry.getKey())) {
 
-                    collapse = true;
-                }
+                group = group.equals("") ? ALL_GROUPS : group;
 
-            } catch (RemoteException e) {
+                if (!counts.containsKey(group))
+                    counts.put(group, new HashSet<ServiceID>());
 
-                for (ServiceItem item : map.values())
-                    Platform.runLater((Runnable) new Removed(registrar, item));
+                counts.get(group).addAll(ids);                                  // Once, however many registrars hold it.
+            }
+        }
+
+        for (String group : counts.keySet())
+            groups.put(group, time);
+
+        Iterator<Map.Entry<String, Long>> iterator = groups.entrySet().iterator();
 
-                services.remove(registrar.getServiceID());
+        while (iterator.hasNext()) {
 
-                Platform.runLater((Runnable) new Discarded(registrar));
+            Map.Entry<String, Long> entry = iterator.next();
+
+            if (time - entry.getValue() > Series.SPAN) {
                 iterator.remove();
+                continue;
+            }
+
+            Set<ServiceID> ids = counts.get(entry.getKey());
+            history.record(History.GROUP + entry.getKey(), (ids == null) ? 0 : ids.size());
+        }
+    }
 
-                collapse = true;
+    /**
+     * Captures every registrar in view, and its services, for an <code>Export</code>
+     * subscriber's snapshot. Run on the scheduled thread only, which owns every
+     * scope's state, and the services in view.
+     */
+    void snapshot(Export.Subscriber subscriber) {
 
-            } catch (Exception e) {}
+        for (Map.Entry<ServiceID, Set<Scope>> entry : trackers.entrySet()) {
 
-        /*
-         * Owing to the JavaFX bug that selects a random tree item when
-         * the tree is modified, lengthened or shortened, Djinn collapses
-         * the tree instead of showing random item data, in the central pane,
-         * out of sync with the item shown selected in the tree.
-         */
-        //if (collapse)
-        //    Platform.runLater((Runnable) new Collapse());
+            ServiceID id = entry.getKey();
+            Scope scope = entry.getValue().iterator().next();
+
+            subscriber.add(scope.registrars.get(id), scope.locators.get(id), scope.memberships.get(id), shown.get(id).values());
+        }
+    }
+
+    /*
+     * Parses a comma separated list of groups, where "*" denotes all groups.
+     */
+    static String[] toGroups(String text) {
+
+        text = text.trim();
 
-        scheduled.schedule((Runnable) this, FREQUENCY, TimeUnit.SECONDS);
+        return text.equals("*") ? LookupDiscovery.ALL_GROUPS : text.split("\\s*,\\s*");
     }
 
     public static final void main(String[] args) {
@@ -310,13 +466,7 @@ public class Djinn extends Application implements ChangeListener, DiscoveryListe
         @Override
         public void run() {
 
-            String label = null;
-
-            for (Entry entry : item.attributeSets)
-                if (entry instanceof ServiceInfo) {
-                    label = ((ServiceInfo) entry).name;
-                    break;
-                }
+            String label = Util.toLabel(item);
 
             Wrapper value = new Wrapper(this.item, (label == null) ? item.serviceID.toString() : label);
 
@@ -358,7 +508,7 @@ public class Djinn extends Application implements ChangeListener, DiscoveryListe
 
             if (object instanceof ServiceRegistrar) {
                 ServiceRegistrar registrar = (ServiceRegistrar) object;
-                Util.showRegistrar(registrar, pane);
+                Util.showRegistrar(registrar, history, pane);
             }
         }
     }
@@ -379,9 +529,9 @@ public class Djinn extends Application implements ChangeListener, DiscoveryListe
              * Workaround. Djinn#changed(..) seems to be called during or after
              * TreeItem#setExpanded(..) is executed. The #changed(..) call, which
              * consequently calls Djinn$Changed, erroneously, can be remedied by
-             * a further null argument call to Djinn$Changed, as follows...
+             * a further null selection, as follows, which supersedes it...
              */
-            Platform.runLater((Runnable) new Changed());
+            selection.select(null);
         }
     }
 
@@ -451,11 +601,15 @@ public class Djinn extends Application implements ChangeListener, DiscoveryListe
     private class Discovered implements Runnable {
 
         // type(s)
+        private String[] groups;
+        private LookupLocator locator;
         private ServiceRegistrar registrar;
 
-        private Discovered(ServiceRegistrar registrar) {
+        private Discovered(ServiceRegistrar registrar, LookupLocator locator, String[] groups) {
             super();
             this.registrar = registrar;
+            this.locator = locator;
+            this.groups = groups;
         }
 
         // Runnable
@@ -465,7 +619,6 @@ public class Djinn extends Application implements ChangeListener, DiscoveryListe
             List children = tree.getRoot().getChildren();
 
             try {
-                LookupLocator locator = registrar.getLocator();
                 String label = locator.getHost() + ":" + locator.getPort();
 
                 TreeItem child = new TreeItem();
@@ -483,7 +636,7 @@ public class Djinn extends Application implements ChangeListener, DiscoveryListe
                     groups.add(pane.getText());
                 }
 
-                for (String group : registrar.getGroups()) {
+                for (String group : this.groups) {
 
                     group = group.equals("") ? ALL_GROUPS : group;
 
@@ -505,7 +658,6 @@ public class Djinn extends Application implements ChangeListener, DiscoveryListe
                     box.getChildren().add(node);
                 }
 
-            } catch (RemoteException e) {
             } catch (Exception e) {
                 e.printStackTrace();
             }
@@ -553,20 +705,322 @@ public class Djinn extends Application implements ChangeListener, DiscoveryListe
         }
     }
 
-    private static class Event {
+    /**
+     * Scope is a discovery session for one set of groups, polled every <code>frequency</code>
+     * seconds. Each scope has its own <code>LookupDiscovery</code>, and tracks and polls its
+     * registrars independently of any other scope, and is added and removed at runtime,
+     * via <code>Djinn#addScope(..)</code> and <code>Djinn#removeScope(..)</code>. A registrar
+     * that is a member of groups in more than one scope is tracked by each of them; what
+     * they observe is merged, without duplicates, by <code>Djinn#show(..)</code>,
+     * <code>Djinn#update(..)</code> and <code>Djinn#hide(..)</code>. Scopes run on the
+     * scheduled thread only, except for their DiscoveryChangeListener methods, which feed
+     * the scope's <code>Intake</code>, along with the groups LookupDiscovery announces for
+     * each registrar, and the first lookup of each registrar.
+     */
+    private class Scope implements DiscoveryChangeListener, Runnable {
+
+        // type(s)
+        private LookupDiscovery discovery;
+        private long frequency;
+        private ScheduledFuture<?> future;
+        private String[] groups;
+        private Map<ServiceID, LookupLocator> locators = new HashMap<>();       // Collected at first lookup.
+        private Map<ServiceID, String[]> memberships = new HashMap<>();         // Groups of each registrar, as last announced.
+        private Intake intake = new Intake();                                   // Competition between DiscoveryListener & 'scheduled'.
+        private String name;
+        private Set<ServiceID> pending = new HashSet<>();                       // Awaiting their first lookup.
+        private Map<ServiceID, ServiceRegistrar> registrars = new HashMap<>();
+
+        private Scope(String name, String[] groups, long frequency) {
+            super();
+            this.name = name;
+            this.groups = groups;
+            this.frequency = frequency;
+        }
+
+        private void open() throws IOException {
+
+            discovery = new LookupDiscovery(LookupDiscovery.NO_GROUPS);
+
+            discovery.addDiscoveryListener((DiscoveryListener) this);         // Changes too, as a DiscoveryChangeListener.
+            discovery.setGroups(groups);
+
+            future = scheduled.schedule((Runnable) this, HIATUS, TimeUnit.SECONDS);
+        }
+
+        /*
+         * Forgets everything this scope knows. Registrars that other scopes
+         * track remain in view.
+         */
+        private void close() {
+
+            future.cancel(false);
+
+            discovery.removeDiscoveryListener((DiscoveryListener) this);
+            discovery.terminate();
+
+            for (ServiceRegistrar registrar : new ArrayList<>(registrars.values()))
+                forget(registrar);
+        }
+
+        // DiscoveryListener
+        @Override
+        public void discarded(DiscoveryEvent event) {
+
+            for (ServiceRegistrar registrar : event.getRegistrars())
+                intake.offer(new Event(Event.DISCARDED, registrar, null));      // The sweep catches any refused.
+
+            System.out.println(name + " discarded");
+        }
+
+        // DiscoveryListener
+        @Override
+        public void discovered(DiscoveryEvent event) {
+
+            offer(event);
+            System.out.println(name + " discovered");
+        }
+
+        // DiscoveryChangeListener
+        @Override
+        public void changed(DiscoveryEvent event) {
+
+            offer(event);                                                       // Discovered again, in new groups.
+            System.out.println(name + " changed");
+        }
+
+        /*
+         * Queues discoveries, with the groups LookupDiscovery announced for each
+         * registrar. A registrar refused by a full intake is discarded, so that
+         * LookupDiscovery discovers it afresh at its next announcement.
+         */
+        private void offer(DiscoveryEvent event) {
+
+            Map groups = event.getGroups();
+
+            for (ServiceRegistrar registrar : event.getRegistrars())
+                if (!intake.offer(new Event(Event.DISCOVERED, registrar, (String[]) groups.get(registrar))))
+                    discovery.discard(registrar);
+        }
+
+        /**
+         * This is the heart of the event generator, that is run every <code>frequency</code>
+         * seconds. It generates Discovered and Discarded events for registrar discovery
+         * and partition, and Added and Removed events for service discovery and their
+         * partition. <code>Scope#run()</code> accepts <code>Djinn$Event</code> objects generated
+         * from <code>LookupDiscovery(..)</code> events, that are coalesced by the intake. New
+         * registrars are handed to a Lookup, which checks for any services associated
+         * with them via a call to <code>ServiceRegistrar#lookup(..)</code> off the scheduled
+         * thread, while the major part of the run() method polls the others.
+         */
+        // Runnable
+        @Override
+        public void run() {
+
+            for (Event event : intake.drain()) {
+
+                ServiceRegistrar registrar = event.registrar;
+                ServiceID id = registrar.getServiceID();
+
+                if (Event.DISCARDED.equals(event.type)) {
+
+                    if (registrars.containsKey(id))
+                        forget(registrars.get(id));
+
+                    continue;
+                }
+
+                if (event.groups != null)
+                    memberships.put(id, event.groups);                          // Discovered, or its groups changed.
+
+                if (registrars.containsKey(id))
+                    continue;
+
+                registrars.put(id, registrar);
+
+                pending.add(id);
+                lookups.execute(new Lookup(registrar, event.groups));
+            }
+
+            /*
+             * The "major part". This polls each registrar. This is ugly but necessary
+             * in order to find out exactly where a service is registered, given that
+             * a single service can be registered with N registrars.
+             */
+            for (ServiceRegistrar registrar : new ArrayList<>(registrars.values()))
+                try {
+                    if (pending.contains(registrar.getServiceID()))
+                        continue;
+
+                    long time = System.nanoTime();
+
+                    // RemoteException
+                    ServiceMatches matches = registrar.lookup(new ServiceTemplate(null, null, null), Integer.MAX_VALUE);
+
+                    history.record(History.LATENCY + registrar.getServiceID(), (System.nanoTime() - time) / 1e6);
+                    history.record(History.SERVICES + registrar.getServiceID(), matches.items.length);
+
+                    update(registrar, matches.items);
+
+                } catch (RemoteException e) {
+
+                    forget(registrar);
+                    discovery.discard(registrar);                               // Rediscover it, should it return.
+
+                } catch (Exception e) {}
+
+            sample();
+
+            future = scheduled.schedule((Runnable) this, frequency, TimeUnit.SECONDS);
+        }
+
+        /*
+         * Registrars still awaiting their first lookup were never shown, so are
+         * forgotten quietly.
+         */
+        private void forget(ServiceRegistrar registrar) {
+
+            ServiceID id = registrar.getServiceID();
+
+            if (!pending.remove(id))
+                hide(this, registrar);
+
+            locators.remove(id);
+            memberships.remove(id);
+            registrars.remove(id);
+        }
+
+        /*
+         * Shows a registrar, and the result of its first lookup, back on the
+         * scheduled thread, unless the registrar has been forgotten meanwhile. A
+         * registrar whose first lookup failed is forgotten, and discarded, so that
+         * LookupDiscovery discovers it afresh should it return.
+         */
+        private void looked(ServiceRegistrar registrar, ServiceMatches matches, LookupLocator locator, String[] groups, double latency) {
+
+            ServiceID id = registrar.getServiceID();
+
+            if (!pending.contains(id) || registrars.get(id) != registrar)       // Forgotten, or superseded.
+                return;
+
+            if (matches == null || locator == null || groups == null) {
+                forget(registrar);
+                discovery.discard(registrar);
+                return;
+            }
+
+            pending.remove(id);
+
+            locators.put(id, locator);
+
+            if (!memberships.containsKey(id))
+                memberships.put(id, groups);
+            else
+                groups = memberships.get(id);                                   // Changed since the lookup began.
+
+            history.record(History.LATENCY + id, latency);
+            history.record(History.SERVICES + id, matches.items.length);
+
+            show(this, registrar, locator, groups);
+            update(registrar, matches.items);
+        }
+
+        private class Lookup implements Runnable {
+
+            // type(s)
+            private String[] groups;                                            // As announced.
+            private ServiceRegistrar registrar;
+
+            private Lookup(ServiceRegistrar registrar, String[] groups) {
+                super();
+                this.registrar = registrar;
+                this.groups = groups;
+            }
+
+            // Runnable
+            @Override
+            public void run() {
+
+                ServiceMatches matches = null;
+                LookupLocator locator = null;
+                String[] groups = this.groups;
+                double latency = 0D;
+
+                try {
+                    long time = System.nanoTime();
+
+                    // RemoteException
+                    matches = registrar.lookup(new ServiceTemplate(null, null, null), Integer.MAX_VALUE);
+                    latency = (System.nanoTime() - time) / 1e6;
+
+                    locator = registrar.getLocator();
+
+                    if (groups == null)                                         // Not announced; ask.
+                        groups = registrar.getGroups();
+
+                } catch (RemoteException e) {}
+
+                final ServiceMatches result = matches;
+                final LookupLocator where = locator;
+                final String[] members = groups;
+                final double millis = latency;
+
+                scheduled.execute(new Runnable() {
+
+                    // Runnable
+                    @Override
+                    public void run() {
+                        looked(registrar, result, where, members, millis);
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Selection debounces tree selection changes. Each change restarts a DEBOUNCE
+     * millisecond pause, and only the latest selected object is rendered, by
+     * Djinn$Changed, once the selection has settled. Run on the JavaFX thread only.
+     */
+    private class Selection implements EventHandler<ActionEvent> {
+
+        // type(s)
+        private Object object;
+        private PauseTransition pause = new PauseTransition(Duration.millis(DEBOUNCE));
+
+        private Selection() {
+            super();
+            pause.setOnFinished(this);
+        }
+
+        private void select(Object object) {
+            this.object = object;
+            pause.playFromStart();
+        }
+
+        // EventHandler
+        @Override
+        public void handle(ActionEvent event) {
+            new Changed(object).run();
+        }
+    }
+
+    static class Event {
 
         // constant(s)
-        private static final String DISCARDED = "discarded";                    // Discards are ignored.
-        private static final String DISCOVERED = "discovered";
+        static final String DISCARDED = "discarded";
+        static final String DISCOVERED = "discovered";
 
         // type(s)
-        private ServiceRegistrar registrar;
-        private String type;
+        String[] groups;                                                        // As announced, given a discovery.
+        ServiceRegistrar registrar;
+        String type;
 
-        private Event(String type, ServiceRegistrar registrar) {
+        private Event(String type, ServiceRegistrar registrar, String[] groups) {
             super();
             this.type = type;
             this.registrar = registrar;
+            this.groups = groups;
         }
     }
 
@@ -0,0 +1,650 @@
+package jini;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import net.jini.core.discovery.LookupLocator;
+import net.jini.core.lookup.ServiceItem;
+import net.jini.core.lookup.ServiceRegistrar;
+
+/**
+ * Export streams the topology known to Djinn, as newline delimited JSON, to a
+ * file named by the <code>djinn.export.file</code> system property, and/or to any
+ * client of a loopback socket listening on the <code>djinn.export.port</code> port.
+ * Each subscriber first receives a snapshot, bracketed by "snapshot" and "end"
+ * records, of every registrar and service, followed by "discovered", "discarded",
+ * "added" and "removed" deltas as the scheduled loop detects them. A socket client
+ * may also query the capacity <code>History</code>, by sending a line of the form
+ * "series &lt;key&gt; &lt;second|minute|hour&gt; [count]", answered with a "series" record
+ * of bucket means, oldest first, in which null marks a bucket with no samples.
+ * Given the <code>djinn.export.control=true</code> system property, and only then, a
+ * socket client may also add, or replace, and remove discovery scopes at runtime,
+ * with lines of the form "scope add &lt;name&gt; &lt;group,group|*&gt; &lt;seconds&gt;" and
+ * "scope remove &lt;name&gt;", each answered with a "scope" record whose status is
+ * "ok" once the change has taken effect, or else "error", with the reason.
+ * <p>
+ * Each subscriber has a writer thread of its own, fed by a bounded queue. The
+ * scheduled thread, which alone owns Djinn's registrar and service maps, only
+ * captures the snapshot's registrars and services, then queues rendered deltas
+ * behind it, so a snapshot is always consistent with the deltas that follow it,
+ * and a slow socket client never stalls the scheduled loop. A socket client that
+ * lets LIMIT lines queue up is dropped, and the drop logged. The file is never
+ * dropped: once LIMIT lines are queued for it, the scheduled loop blocks until
+ * the file catches up, and on close the file's queue is written out, followed by
+ * a final "closed" record, so a file that lacks one is known to be truncated.
+ * Registrar records are rendered from the locator and groups collected when the
+ * registrar was discovered, never by calling the registrar again.
+ */
+class Export implements Runnable {
+
+    // constant(s)
+    static final String FILE = "djinn.export.file";                             // System property.
+    static final String PORT = "djinn.export.port";                             // System property.
+    static final String CONTROL = "djinn.export.control";                       // System property.
+
+    private static final int LIMIT = 8192;                                      // Lines queued before a client is dropped.
+    private static final long LINGER = 2000;                                    // Milliseconds allowed to write out the file.
+    private static final String USAGE = "usage: scope add <name> <group,group|*> <seconds> | scope remove <name>";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String EXPORT = "export";                              // Thread name.
+
+    private static final String ADDED = "added";
+    private static final String CLOSED = "closed";
+    private static final String DISCARDED = "discarded";
+    private static final String DISCOVERED = "discovered";
+    private static final String END = "end";
+    private static final String REGISTRAR = "registrar";
+    private static final String REMOVED = "removed";
+    private static final String SCOPE = "scope";
+    private static final String SERVICE = "service";
+    private static final String SERIES = "series";
+    private static final String SNAPSHOT = "snapshot";
+
+    // type(s)
+    private boolean control = Boolean.getBoolean(CONTROL);                      // Accept scope commands.
+    private Djinn djinn;
+    private History history;
+    private ScheduledExecutorService scheduled;
+    private ServerSocket server;
+    private List<Subscriber> subscribers = new CopyOnWriteArrayList<>();        // Post snapshot capture.
+
+    Export(Djinn djinn, History history, ScheduledExecutorService scheduled) {
+        super();
+        this.djinn = djinn;
+        this.history = history;
+        this.scheduled = scheduled;
+    }
+
+    void open() throws IOException {
+
+        String file = System.getProperty(FILE);
+        String port = System.getProperty(PORT);
+
+        if (file != null)
+            subscribe(new FileOutputStream(file), null);
+
+        if (port != null) {
+
+            server = new ServerSocket(Integer.parseInt(port), 0, InetAddress.getLoopbackAddress());
+
+            Thread thread = new Thread(this, EXPORT);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    void close() {
+
+        try {
+            if (server != null)
+                server.close();
+        } catch (IOException e) {}
+
+        for (Subscriber subscriber : subscribers) {
+
+            unsubscribe(subscriber);
+
+            try {
+                if (subscriber.socket == null && subscriber.thread != null)
+                    subscriber.thread.join(LINGER);                             // Let the file be written out.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Runnable
+    @Override
+    public void run() {
+
+        while (!server.isClosed())
+            try {
+                Socket socket = server.accept();
+                Subscriber subscriber = subscribe(socket.getOutputStream(), socket);
+
+                Thread thread = new Thread(new Query(subscriber), EXPORT);
+                thread.setDaemon(true);
+                thread.start();
+
+            } catch (IOException e) {}
+    }
+
+    /*
+     * Delta records, called from the scheduled thread only.
+     */
+    void added(ServiceRegistrar registrar, ServiceItem item) {
+
+        if (subscribers.isEmpty())
+            return;
+
+        publish(toService(ADDED, registrar, item));
+    }
+
+    void discarded(ServiceRegistrar registrar) {
+
+        if (subscribers.isEmpty())
+            return;
+
+        publish(new Record(DISCARDED).put(REGISTRAR, registrar.getServiceID().toString()).toString());
+    }
+
+    void discovered(ServiceRegistrar registrar, LookupLocator locator, String[] groups) {
+
+        if (subscribers.isEmpty())
+            return;
+
+        publish(toRegistrar(DISCOVERED, registrar, locator, groups));
+    }
+
+    void removed(ServiceRegistrar registrar, ServiceItem item) {
+
+        if (subscribers.isEmpty())
+            return;
+
+        publish(new Record(REMOVED)
+                .put(REGISTRAR, registrar.getServiceID().toString())
+                .put(SERVICE, item.serviceID.toString())
+                .toString());
+    }
+
+    private void publish(String line) {
+
+        for (Subscriber subscriber : subscribers) {
+
+            if (subscriber.socket == null) {
+
+                try {
+                    subscriber.queue.put(line);                                 // The file is never dropped.
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();                         // Shutting down.
+                    return;
+                }
+
+            } else if (!subscriber.queue.offer(line)) {
+
+                System.out.println(EXPORT + " " + subscriber.socket.getRemoteSocketAddress() + " dropped, " + LIMIT + " lines behind");
+                unsubscribe(subscriber);
+            }
+        }
+    }
+
+    private Subscriber subscribe(OutputStream stream, Socket socket) {
+
+        Subscriber subscriber = new Subscriber(new BufferedWriter(new OutputStreamWriter(stream, UTF_8)), socket);
+        scheduled.execute(new Subscribe(subscriber));
+
+        return subscriber;
+    }
+
+    /*
+     * Never blocks: closing the socket frees a writer thread blocked on it.
+     */
+    private void unsubscribe(Subscriber subscriber) {
+
+        subscribers.remove(subscriber);
+
+        subscriber.closed = true;
+
+        if (subscriber.thread != null)
+            subscriber.thread.interrupt();
+
+        try {
+            if (subscriber.socket != null)
+                subscriber.socket.close();
+        } catch (IOException e) {}
+    }
+
+    private static String toRegistrar(String type, ServiceRegistrar registrar, LookupLocator locator, String[] groups) {
+
+        Record record = new Record(type).put(REGISTRAR, registrar.getServiceID().toString());
+
+        if (locator != null) {
+            record.put("host", locator.getHost());
+            record.put("port", locator.getPort());
+        }
+
+        if (groups != null) {
+
+            String[] names = new String[groups.length];
+
+            for (int i = 0; i < groups.length; ++i)
+                names[i] = groups[i].equals("") ? Djinn.ALL_GROUPS : groups[i];
+
+            record.put("groups", names);
+        }
+
+        return record.toString();
+    }
+
+    private static String toService(String type, ServiceRegistrar registrar, ServiceItem item) {
+
+        Record record = new Record(type)
+                .put(REGISTRAR, registrar.getServiceID().toString())
+                .put(SERVICE, item.serviceID.toString());
+
+        String label = Util.toLabel(item);
+        if (label != null)
+            record.put("name", label);
+
+        return record.toString();
+    }
+
+    /**
+     * Query reads a socket client's requests, on a thread of its own, and queues
+     * their answers behind the subscriber's snapshot and deltas. The subscriber is
+     * dropped once the client closes its end of the socket.
+     */
+    private class Query implements Runnable {
+
+        // type(s)
+        private Subscriber subscriber;
+
+        private Query(Subscriber subscriber) {
+            super();
+            this.subscriber = subscriber;
+        }
+
+        // Runnable
+        @Override
+        public void run() {
+
+            try {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(subscriber.socket.getInputStream(), UTF_8));
+
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+
+                    String[] words = line.trim().split("\\s+");
+
+                    String record;
+
+                    if (words[0].equals(SCOPE))
+                        record = scope(words);
+                    else if (words[0].equals(SERIES))
+                        record = series(words);
+                    else
+                        continue;
+
+                    if (record == null)
+                        continue;
+
+                    if (!subscriber.queue.offer(record))
+                        break;                                                  // Not keeping up.
+                }
+
+            } catch (IOException e) {
+            } finally {
+                unsubscribe(subscriber);
+            }
+        }
+
+        /*
+         * The tier, and optional count, are taken from the end of the line, so
+         * that keys may hold spaces, as the public group's "group/ALL GROUPS" does.
+         */
+        private String series(String[] words) {
+
+            List<String> names = Arrays.asList(Series.NAMES);
+
+            int end = words.length;                                             // Key words end here.
+            Integer count = null;
+
+            if (end > 3 && !names.contains(words[end - 1]))
+                try {
+                    count = Integer.parseInt(words[--end]);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+
+            if (end < 3)
+                return null;
+
+            int tier = names.indexOf(words[--end]);
+            if (tier < 0)
+                return null;
+
+            if (count == null)
+                count = Series.LENGTHS[tier];
+
+            if (count <= 0)
+                return null;
+
+            StringBuilder key = new StringBuilder(words[1]);
+
+            for (int i = 2; i < end; ++i)
+                key.append(' ').append(words[i]);
+
+            Record record = new Record(SERIES)
+                    .put("key", key.toString())
+                    .put("tier", Series.NAMES[tier])
+                    .put("interval", Series.INTERVALS[tier]);
+
+            double[] values = history.query(key.toString(), tier, count);
+            if (values != null)
+                record.put("values", values);
+
+            return record.toString();
+        }
+
+        /*
+         * Applies a scope command, waiting until it has taken effect, and
+         * answers with its outcome.
+         */
+        private String scope(String[] words) {
+
+            String action = (words.length > 1) ? words[1] : "";
+            Record record = new Record(SCOPE).put("action", action);
+
+            if (!control)
+                return record.put("status", "error").put("error", CONTROL + " is not set").toString();
+
+            try {
+                if (words.length == 5 && action.equals("add")) {
+
+                    record.put("name", words[2]);
+                    djinn.addScope(words[2], Djinn.toGroups(words[3]), Long.parseLong(words[4])).get();
+
+                } else if (words.length == 3 && action.equals("remove")) {
+
+                    record.put("name", words[2]);
+
+                    if (!djinn.removeScope(words[2]).get())
+                        return record.put("status", "error").put("error", "no such scope").toString();
+
+                } else
+                    return record.put("status", "error").put("error", USAGE).toString();
+
+            } catch (IllegalArgumentException e) {                              // Bad frequency.
+                return record.put("status", "error").put("error", e.getMessage()).toString();
+            } catch (ExecutionException e) {
+                return record.put("status", "error").put("error", String.valueOf(e.getCause())).toString();
+            } catch (InterruptedException e) {
+                return null;
+            }
+
+            return record.put("status", "ok").toString();
+        }
+    }
+
+    private class Subscribe implements Runnable {
+
+        // type(s)
+        private Subscriber subscriber;
+
+        private Subscribe(Subscriber subscriber) {
+            super();
+            this.subscriber = subscriber;
+        }
+
+        // Runnable
+        @Override
+        public void run() {
+
+            if (subscriber.closed)
+                return;
+
+            djinn.snapshot(subscriber);
+            subscribers.add(subscriber);
+
+            subscriber.thread = new Thread(subscriber, EXPORT);
+            subscriber.thread.setDaemon(true);
+            subscriber.thread.start();
+        }
+    }
+
+    /**
+     * Subscriber writes one client's records, on a thread of its own: first the
+     * snapshot captured by the scheduled thread, then its queued lines, as they
+     * arrive.
+     */
+    class Subscriber implements Runnable {
+
+        // type(s)
+        private volatile boolean closed;
+        private List<Entry> entries = new ArrayList<>();                        // Snapshot, pending write.
+        private BlockingQueue<String> queue = new LinkedBlockingQueue<>(LIMIT);
+        private Socket socket;                                                  // Null, given a file.
+        private volatile Thread thread;
+        private Writer writer;
+
+        private Subscriber(Writer writer, Socket socket) {
+            super();
+            this.writer = writer;
+            this.socket = socket;
+        }
+
+        /**
+         * Captures one registrar, and the services known to it, for the snapshot.
+         * Called back from <code>Djinn#snapshot(..)</code>, on the scheduled thread.
+         */
+        void add(ServiceRegistrar registrar, LookupLocator locator, String[] groups, Collection<ServiceItem> items) {
+            entries.add(new Entry(registrar, locator, groups, new ArrayList<>(items)));
+        }
+
+        // Runnable
+        @Override
+        public void run() {
+
+            boolean failed = false;
+
+            try {
+                writer.write(new Record(SNAPSHOT).toString());
+
+                for (Entry entry : entries) {
+
+                    writer.write(toRegistrar(REGISTRAR, entry.registrar, entry.locator, entry.groups));
+
+                    for (ServiceItem item : entry.items)
+                        writer.write(toService(SERVICE, entry.registrar, item));
+                }
+
+                entries = null;
+
+                writer.write(new Record(END).toString());
+                writer.flush();
+
+                while (!closed) {
+
+                    writer.write(queue.take());
+
+                    if (queue.isEmpty())
+                        writer.flush();
+                }
+
+            } catch (IOException e) {
+                failed = true;
+
+                if (!closed)
+                    e.printStackTrace();                                        // Not merely a dropped client.
+            } catch (InterruptedException e) {
+            } finally {
+                if (socket == null && !failed)
+                    finish();
+
+                unsubscribe(this);
+
+                try {
+                    writer.close();
+                } catch (IOException e) {}
+            }
+        }
+
+        /*
+         * Writes out the file's queue, then the "closed" record marking its end.
+         */
+        private void finish() {
+
+            try {
+                for (String line = queue.poll(); line != null; line = queue.poll())
+                    writer.write(line);
+
+                writer.write(new Record(CLOSED).toString());
+                writer.flush();
+
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static class Entry {
+
+        // type(s)
+        private List<ServiceItem> items;
+        private LookupLocator locator;
+        private String[] groups;
+        private ServiceRegistrar registrar;
+
+        private Entry(ServiceRegistrar registrar, LookupLocator locator, String[] groups, List<ServiceItem> items) {
+            super();
+            this.registrar = registrar;
+            this.locator = locator;
+            this.groups = groups;
+            this.items = items;
+        }
+    }
+
+    /**
+     * A single JSON object, rendered as one NDJSON line. Every record carries its
+     * type and the time at which it was produced.
+     */
+    private static class Record {
+
+        // type(s)
+        private StringBuilder builder = new StringBuilder(128);
+
+        private Record(String type) {
+            super();
+            builder.append("{\"type\":");
+            quote(type);
+            builder.append(",\"time\":").append(System.currentTimeMillis());
+        }
+
+        private Record put(String name, String value) {
+            builder.append(',');
+            quote(name);
+            builder.append(':');
+            quote(value);
+            return this;
+        }
+
+        private Record put(String name, long value) {
+            builder.append(',');
+            quote(name);
+            builder.append(':').append(value);
+            return this;
+        }
+
+        private Record put(String name, double[] values) {
+            builder.append(',');
+            quote(name);
+            builder.append(":[");
+
+            for (int i = 0; i < values.length; ++i) {
+                if (i > 0)
+                    builder.append(',');
+                if (Double.isNaN(values[i]))
+                    builder.append("null");
+                else
+                    builder.append(values[i]);
+            }
+
+            builder.append(']');
+            return this;
+        }
+
+        private Record put(String name, String[] values) {
+            builder.append(',');
+            quote(name);
+            builder.append(":[");
+
+            for (int i = 0; i < values.length; ++i) {
+                if (i > 0)
+                    builder.append(',');
+                quote(values[i]);
+            }
+
+            builder.append(']');
+            return this;
+        }
+
+        private void quote(String string) {
+
+            builder.append('"');
+
+            for (int i = 0; i < string.length(); ++i) {
+
+                char c = string.charAt(i);
+
+                switch (c) {
+                    case '"':
+                        builder.append("\\\"");
+                        break;
+                    case '\\':
+                        builder.append("\\\\");
+                        break;
+                    case '\n':
+                        builder.append("\\n");
+                        break;
+                    case '\r':
+                        builder.append("\\r");
+                        break;
+                    case '\t':
+                        builder.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20)
+                            builder.append(String.format("\\u%04x", (int) c));
+                        else
+                            builder.append(c);
+                }
+            }
+
+            builder.append('"');
+        }
+
+        // Object
+        @Override
+        public String toString() {
+            return builder.toString() + "}\n";
+        }
+    }
+}
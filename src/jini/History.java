@@ -0,0 +1,125 @@
+package jini;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * History keeps a <code>Series</code> for each of the capacity measures Djinn records:
+ * the services known to each registrar, the latency of each registrar's lookups, in
+ * milliseconds, and the services known to each group. Series are keyed by one of
+ * the SERVICES, LATENCY or GROUP prefixes, followed by the registrar ServiceID or
+ * group name. A series is evicted once nothing has been recorded to it for the span
+ * of its longest tier or, once retired, because its registrar has left view, for
+ * GRACE. At most CAPACITY series are held, so memory stays bounded however many
+ * registrars come and go: once full, the series that lapsed longest ago, if it
+ * lapsed at least GRACE ago, makes way for a new one; otherwise, the new series is
+ * not kept, so that live series are never evicted for one another.
+ */
+class History {
+
+    // constant(s)
+    static final String GROUP = "group/";
+    static final String LATENCY = "latency/";
+    static final String SERVICES = "services/";
+
+    private static final int CAPACITY = 512;                                    // Series held, at ~40KB each.
+    private static final long GRACE = Series.INTERVALS[Series.HOUR];           // Longer than any sensible poll.
+
+    // type(s)
+    private long evicted = System.currentTimeMillis();                          // Time of the last eviction pass.
+    private Map<String, Series> series = new HashMap<>();
+
+    History() {
+        super();
+    }
+
+    void record(String key, double value) {
+
+        long time = System.currentTimeMillis();
+        Series s;
+
+        synchronized (this) {
+            evict(time);
+
+            s = series.get(key);
+
+            if (s == null) {
+
+                if (series.size() >= CAPACITY && !evictLapsed(time))
+                    return;                                                     // Full of live series.
+
+                s = new Series();
+                series.put(key, s);
+            }
+        }
+
+        s.record(time, value);
+    }
+
+    /**
+     * Returns the latest <code>count</code> bucket means of the keyed series' tier, oldest
+     * first, or null for an unknown series.
+     */
+    double[] query(String key, int tier, int count) {
+
+        Series s;
+
+        synchronized (this) {
+            s = series.get(key);
+        }
+
+        return (s == null) ? null : s.query(tier, count, System.currentTimeMillis());
+    }
+
+    /**
+     * Marks a series for eviction GRACE after its last record, unless it is
+     * recorded again meanwhile, as when its registrar returns.
+     */
+    synchronized void retire(String key) {
+
+        Series s = series.get(key);
+
+        if (s != null)
+            s.retire();
+    }
+
+    /*
+     * Evicts stale series, at most once an hour.
+     */
+    private void evict(long time) {
+
+        if (time - evicted < GRACE)
+            return;
+
+        evicted = time;
+
+        Iterator<Series> iterator = series.values().iterator();
+
+        while (iterator.hasNext())
+            if (iterator.next().isStale(time, GRACE))
+                iterator.remove();
+    }
+
+    /*
+     * Evicts the series that lapsed longest ago, provided it lapsed at least
+     * GRACE ago.
+     */
+    private boolean evictLapsed(long time) {
+
+        String oldest = null;
+        long last = time - GRACE;
+
+        for (Map.Entry<String, Series> entry : series.entrySet())
+            if (entry.getValue().getLast() < last) {
+                oldest = entry.getKey();
+                last = entry.getValue().getLast();
+            }
+
+        if (oldest == null)
+            return false;
+
+        series.remove(oldest);
+        return true;
+    }
+}
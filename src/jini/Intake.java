@@ -0,0 +1,69 @@
+package jini;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import net.jini.core.lookup.ServiceID;
+
+/**
+ * Intake sits between a scope's DiscoveryListener and its scheduled loop. Events are
+ * keyed by registrar ServiceID, so a burst of announcements from one registrar
+ * coalesces before any remote work is done. A registrar's pending discard survives a
+ * later discovery, so that a registrar restarted within one poll is drained as a
+ * discard, then a discovery, and its stale proxy is forgotten before the new one is
+ * adopted; a discovery followed by a discard drains as the discard alone. Intake
+ * holds at most CAPACITY discoveries, and CAPACITY discards; <code>Intake#offer(..)</code>
+ * refuses any more, leaving the caller to have them discovered again later.
+ */
+class Intake {
+
+    // constant(s)
+    private static final int CAPACITY = 256;                                    // Registrars pending, per scope.
+
+    // type(s)
+    private Map<ServiceID, Djinn.Event> discards = new LinkedHashMap<>();
+    private Map<ServiceID, Djinn.Event> discoveries = new LinkedHashMap<>();
+
+    Intake() {
+        super();
+    }
+
+    synchronized boolean offer(Djinn.Event event) {
+
+        ServiceID id = event.registrar.getServiceID();
+
+        if (Djinn.Event.DISCARDED.equals(event.type)) {
+
+            discoveries.remove(id);                                             // Gone before it was adopted.
+
+            if (!discards.containsKey(id) && discards.size() >= CAPACITY)
+                return false;
+
+            discards.put(id, event);
+            return true;
+        }
+
+        if (!discoveries.containsKey(id) && discoveries.size() >= CAPACITY)
+            return false;
+
+        discoveries.put(id, event);                                             // Latest proxy wins, in first-seen order.
+        return true;
+    }
+
+    /**
+     * Returns, and clears, the pending events: every discard, then every discovery.
+     */
+    synchronized List<Djinn.Event> drain() {
+
+        List<Djinn.Event> list = new ArrayList<>(discards.size() + discoveries.size());
+
+        list.addAll(discards.values());
+        list.addAll(discoveries.values());
+
+        discards.clear();
+        discoveries.clear();
+
+        return list;
+    }
+}
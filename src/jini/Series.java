@@ -0,0 +1,107 @@
+package jini;
+
+import java.util.Arrays;
+
+/**
+ * Series is a fixed-size time series, held in three tiers of fixed-interval
+ * buckets: SECOND, MINUTE and HOUR. Each recorded value is downsampled into
+ * every tier as it arrives, so a tier's bucket holds the mean of the values
+ * recorded within its interval. Tiers are rings of primitive arrays, whose
+ * slots are reused as time passes, so a series occupies the same memory
+ * however long Djinn runs. Buckets in which nothing was recorded read as NaN.
+ */
+class Series {
+
+    // constant(s)
+    static final int SECOND = 0;
+    static final int MINUTE = 1;
+    static final int HOUR = 2;
+
+    static final long[] INTERVALS = { 1000L, 60000L, 3600000L };                // Bucket width, in milliseconds.
+    static final int[] LENGTHS = { 300, 1440, 720 };                            // 5 minutes, 1 day & 30 days.
+    static final String[] NAMES = { "second", "minute", "hour" };
+
+    static final long SPAN = INTERVALS[HOUR] * LENGTHS[HOUR];                  // Longest tier's span, in milliseconds.
+
+    // type(s)
+    private long[][] buckets = new long[LENGTHS.length][];                     // Bucket number held by each slot.
+    private int[][] counts = new int[LENGTHS.length][];
+    private long last;                                                          // Time of the latest record.
+    private boolean retired;                                                    // Its registrar has left view.
+    private float[][] sums = new float[LENGTHS.length][];
+
+    Series() {
+        super();
+
+        for (int tier = 0; tier < LENGTHS.length; ++tier) {
+
+            buckets[tier] = new long[LENGTHS[tier]];
+            counts[tier] = new int[LENGTHS[tier]];
+            sums[tier] = new float[LENGTHS[tier]];
+
+            Arrays.fill(buckets[tier], -1L);
+        }
+    }
+
+    synchronized void record(long time, double value) {
+
+        last = Math.max(last, time);
+        retired = false;
+
+        for (int tier = 0; tier < LENGTHS.length; ++tier) {
+
+            long bucket = time / INTERVALS[tier];
+            int slot = (int) (bucket % LENGTHS[tier]);
+
+            if (buckets[tier][slot] != bucket) {                                // Slot last held an older bucket.
+                buckets[tier][slot] = bucket;
+                counts[tier][slot] = 0;
+                sums[tier][slot] = 0F;
+            }
+
+            counts[tier][slot] += 1;
+            sums[tier][slot] += (float) value;
+        }
+    }
+
+    /**
+     * Returns true once nothing has been recorded for the span of the longest tier,
+     * when every bucket would read as NaN, or, once retired, for <code>grace</code>
+     * milliseconds.
+     */
+    synchronized boolean isStale(long time, long grace) {
+        return time - last > (retired ? grace : SPAN);
+    }
+
+    synchronized long getLast() {
+        return last;
+    }
+
+    synchronized void retire() {
+        retired = true;
+    }
+
+    /**
+     * Returns the means of the <code>count</code> buckets of a tier up to, and
+     * including, the bucket containing <code>time</code>, oldest first.
+     */
+    synchronized double[] query(int tier, int count, long time) {
+
+        count = Math.min(count, LENGTHS[tier]);
+
+        double[] values = new double[count];
+        long last = time / INTERVALS[tier];
+
+        for (int i = 0; i < count; ++i) {
+
+            long bucket = last - (count - 1 - i);
+            int slot = (int) (bucket % LENGTHS[tier]);
+
+            values[i] = (buckets[tier][slot] == bucket && counts[tier][slot] > 0)
+                    ? sums[tier][slot] / counts[tier][slot]
+                    : Double.NaN;
+        }
+
+        return values;
+    }
+}
@@ -0,0 +1,79 @@
+package jini;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javafx.application.Platform;
+
+/**
+ * Throttle stands between background producers and the JavaFX event loop. Rather
+ * than each command being posted with its own <code>Platform.runLater(..)</code> call,
+ * commands are queued on a bounded queue, which a single posted drain runnable
+ * empties, BATCH commands per turn of the event loop. Once LIMIT commands are
+ * outstanding, producers block in <code>Throttle#runLater(..)</code> until the event
+ * loop catches up, so a burst of changes slows the scheduled loop down, instead of
+ * flooding the JavaFX thread.
+ */
+class Throttle implements Runnable {
+
+    // constant(s)
+    private static final int BATCH = 64;                                        // Commands run per drain.
+    private static final int LIMIT = 1024;                                      // Commands outstanding before producers block.
+
+    // type(s)
+    private AtomicBoolean posted = new AtomicBoolean();                         // Drain runnable queued on the event loop.
+    private BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(LIMIT);
+
+    Throttle() {
+        super();
+    }
+
+    void runLater(Runnable runnable) {
+
+        /*
+         * The JavaFX thread must never block on itself; it posts directly.
+         */
+        if (Platform.isFxApplicationThread()) {
+            Platform.runLater(runnable);
+            return;
+        }
+
+        try {
+            queue.put(runnable);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();                                 // Shutting down.
+            return;
+        }
+
+        if (posted.compareAndSet(false, true))
+            Platform.runLater(this);
+    }
+
+    // Runnable
+    @Override
+    public void run() {
+
+        for (int i = 0; i < BATCH; ++i) {
+
+            Runnable runnable = queue.poll();
+            if (runnable == null)
+                break;
+
+            try {
+                runnable.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+
+        posted.set(false);
+
+        /*
+         * Commands either remain from a full batch, or were queued between the last
+         * poll and the reset above; post again, yielding to the event loop meanwhile.
+         */
+        if (!queue.isEmpty() && posted.compareAndSet(false, true))
+            Platform.runLater(this);
+    }
+}
@@ -11,6 +11,9 @@ import java.util.Collection;
 import java.util.List;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
 import javafx.scene.control.Accordion;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
@@ -19,16 +22,24 @@ import javafx.scene.control.TreeItem;
 import javafx.scene.control.TreeView;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
 import net.jini.core.entry.Entry;
 import net.jini.core.lookup.ServiceID;
 import net.jini.core.lookup.ServiceItem;
 import net.jini.core.lookup.ServiceRegistrar;
+import net.jini.lookup.entry.ServiceInfo;
 
 class Util {
 
     // constant(s)
     private static final String GROUP = "group";
+    private static final String LATENCY = "Lookup latency (ms), per minute";
     private static final String SERVICE_ID = "Service ID";
+    private static final String SERVICES = "Services, per minute";
+
+    private static final double SPARKLINE = 120D;                              // Chart height.
+    private static final int SPAN = 60;                                         // Minutes charted.
 
     static boolean inArrayById(ServiceItem[] items, ServiceItem item) {
 
@@ -74,7 +85,7 @@ class Util {
         } catch (IllegalAccessException e) {}
     }
 
-    static void showRegistrar(ServiceRegistrar registrar, BorderPane pane) {
+    static void showRegistrar(ServiceRegistrar registrar, History history, BorderPane pane) {
 
         ObservableList<Row> rows = FXCollections.observableArrayList();
 
@@ -91,7 +102,34 @@ class Util {
         TableView<Row> table = getTable();
         table.setItems(rows);
 
-        pane.setCenter(table);
+        VBox box = new VBox();
+        box.getChildren().add(table);
+
+        VBox.setVgrow(table, Priority.ALWAYS);
+
+        /*
+         * Sparklines of the last SPAN minutes, as recorded by the scheduled loop.
+         */
+        String id = registrar.getServiceID().toString();
+
+        double[] services = history.query(History.SERVICES + id, Series.MINUTE, SPAN);
+        if (services != null)
+            box.getChildren().add(getChart(SERVICES, services));
+
+        double[] latencies = history.query(History.LATENCY + id, Series.MINUTE, SPAN);
+        if (latencies != null)
+            box.getChildren().add(getChart(LATENCY, latencies));
+
+        pane.setCenter(box);
+    }
+
+    static String toLabel(ServiceItem item) {
+
+        for (Entry entry : item.attributeSets)
+            if (entry instanceof ServiceInfo)
+                return ((ServiceInfo) entry).name;
+
+        return null;
     }
 
     static TitledPane toAccordionPane(String group, Accordion accordion) {
@@ -135,6 +173,34 @@ class Util {
         return item;
     }
 
+    private static LineChart<Number, Number> getChart(String title, double[] values) {
+
+        XYChart.Series<Number, Number> series = new XYChart.Series<>();
+
+        for (int i = 0; i < values.length; ++i)
+            if (!Double.isNaN(values[i]))
+                series.getData().add(new XYChart.Data<Number, Number>(i - values.length + 1, values[i]));
+
+        NumberAxis x = new NumberAxis();
+        x.setTickLabelsVisible(false);
+        x.setTickMarkVisible(false);
+        x.setMinorTickVisible(false);
+
+        NumberAxis y = new NumberAxis();
+        y.setForceZeroInRange(false);
+
+        LineChart<Number, Number> chart = new LineChart<>(x, y);
+        chart.getData().add(series);
+
+        chart.setTitle(title);
+        chart.setAnimated(false);
+        chart.setCreateSymbols(false);
+        chart.setLegendVisible(false);
+        chart.setPrefHeight(SPARKLINE);
+
+        return chart;
+    }
+
     private static TableView<Row> getTable() {
 
         TableColumn<Row, String> names = new TableColumn<>("Name");